@@ -1,5 +1,7 @@
 package io.github.penguin418;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.*;
 import java.util.function.Function;
 import java.util.regex.Matcher;
@@ -11,33 +13,137 @@ import java.util.stream.Collectors;
  * Placeholders can be replaced with actual values at runtime.
  */
 public class MessageTemplate {
+    /**
+     * Default upper bound of the buffer capacity a thread keeps between pooled renders.
+     */
+    public static final int DEFAULT_MAX_RETAINED_BUFFER_LENGTH = 8 * 1024;
+
+    /**
+     * Per-thread render buffer shared by all templates built with buffer pooling.
+     * It only grows, and never beyond the retention limit of the template that grew it.
+     */
+    private static final ThreadLocal<RenderBuffer> BUFFER = ThreadLocal.withInitial(RenderBuffer::new);
+
     private final String[] segmentArray;
     private final Map<String, int[]> keywordToPositionArray;
+    private final String[] positionToKeywordArray;
+    private final boolean bufferPooling;
+    private final int maxRetainedBufferLength;
 
 
-    private MessageTemplate(String[] segmentArray, Map<String, int[]> keywordToPositionArray) {
+    private MessageTemplate(String[] segmentArray, Map<String, int[]> keywordToPositionArray,
+                            boolean bufferPooling, int maxRetainedBufferLength) {
         this.segmentArray = segmentArray;
         this.keywordToPositionArray = keywordToPositionArray;
+        this.positionToKeywordArray = new String[segmentArray.length];
+        for (Map.Entry<String, int[]> entry : keywordToPositionArray.entrySet()) {
+            for (int position : entry.getValue()) {
+                positionToKeywordArray[position] = entry.getKey();
+            }
+        }
+        this.bufferPooling = bufferPooling;
+        this.maxRetainedBufferLength = maxRetainedBufferLength;
     }
 
     /**
      * Processes the template by replacing placeholders with the provided values.
+     * <p>
+     * If the template was built with {@link Builder#bufferPooling(int)}, the output is rendered into a buffer
+     * reused by the calling thread, so the returned String is the only allocation.
      *
      * @param replacements A map containing placeholder keywords and their corresponding replacement values.
      * @return The processed template as a String with placeholders replaced.
      */
     public String process(Map<String, String> replacements) {
+        if (!bufferPooling) {
+            return join(replacements);
+        }
+        int length = resolvedLength(replacements);
+        if (length > maxRetainedBufferLength) {
+            // the output would not fit in a retained buffer
+            return join(replacements);
+        }
+        RenderBuffer renderBuffer = BUFFER.get();
+        if (renderBuffer.inUse) {
+            // nested process() on the same thread, e.g. from a lazily computed replacement
+            return join(replacements);
+        }
+        StringBuilder buffer = renderBuffer.builder;
+        if (buffer == null || buffer.capacity() < length) {
+            // sized exactly, so the buffer never grows while rendering
+            buffer = new StringBuilder(length);
+        }
+        renderBuffer.inUse = true;
+        try {
+            process(replacements, buffer);
+            return buffer.toString();
+        } catch (IOException e) {
+            // StringBuilder never throws IOException
+            throw new UncheckedIOException(e);
+        } finally {
+            // kept as is; a buffer larger than this template's cap was retained by a template with a wider one
+            buffer.setLength(0);
+            renderBuffer.builder = buffer;
+            renderBuffer.inUse = false;
+        }
+    }
+
+    /**
+     * Processes the template by replacing placeholders with the provided values, writing the result into the given
+     * {@link Appendable} instead of creating a new String.
+     *
+     * @param replacements A map containing placeholder keywords and their corresponding replacement values.
+     * @param out          The destination of the processed template.
+     * @throws IOException If appending to {@code out} fails.
+     */
+    public void process(Map<String, String> replacements, Appendable out) throws IOException {
+        for (int i = 0; i < segmentArray.length; i++) {
+            out.append(resolve(replacements, i));
+        }
+    }
+
+    /**
+     * Processes the template into a {@link RenderedMessage}, which remembers where each placeholder was written
+     * so that single values can be updated later without processing the whole template again.
+     *
+     * @param replacements A map containing placeholder keywords and their corresponding replacement values.
+     * @return The processed template as a RenderedMessage.
+     */
+    public RenderedMessage render(Map<String, String> replacements) {
+        String[] valueArray = new String[segmentArray.length];
+        for (int i = 0; i < segmentArray.length; i++) {
+            valueArray[i] = String.valueOf(resolve(replacements, i));
+        }
+        return new RenderedMessage(valueArray, keywordToPositionArray);
+    }
+
+    private String join(Map<String, String> replacements) {
         String[] resultArray = new String[segmentArray.length];
-        System.arraycopy(segmentArray, 0, resultArray, 0, segmentArray.length);
-        replacements.forEach((key, value) -> {
-            if (keywordToPositionArray.containsKey(key)) {
-                for (int position : keywordToPositionArray.get(key))
-                    resultArray[position] = value;
-            }
-        });
+        for (int i = 0; i < segmentArray.length; i++) {
+            resultArray[i] = resolve(replacements, i);
+        }
+        // String.join sizes the result exactly, so the unpooled path never grows a buffer
         return String.join("", resultArray);
     }
 
+    private int resolvedLength(Map<String, String> replacements) {
+        int length = 0;
+        for (int i = 0; i < segmentArray.length; i++) {
+            String value = resolve(replacements, i);
+            // null is rendered as "null"
+            length += value == null ? 4 : value.length();
+        }
+        return length;
+    }
+
+    private String resolve(Map<String, String> replacements, int position) {
+        String keyword = positionToKeywordArray[position];
+        if (keyword == null) {
+            return segmentArray[position];
+        }
+        return replacements.getOrDefault(keyword, segmentArray[position]);
+    }
+
     /**
      * Retrieves the original template with placeholders.
      *
@@ -77,6 +183,11 @@ public class MessageTemplate {
         return templateStringBuilder.toString();
     }
 
+    private static class RenderBuffer {
+        StringBuilder builder;
+        boolean inUse;
+    }
+
     /**
      * Creates a new Builder instance for constructing a MessageTemplate.
      *
@@ -115,6 +226,8 @@ public class MessageTemplate {
         private final List<String> segmentList = new ArrayList<>();
         private final Map<String, List<Integer>> keywordToPositionList = new HashMap<>();
         private String lastAppended = null;
+        private boolean bufferPooling = false;
+        private int maxRetainedBufferLength = DEFAULT_MAX_RETAINED_BUFFER_LENGTH;
 
         /**
          * Appends a string to the template.
@@ -194,6 +307,34 @@ public class MessageTemplate {
             return this;
         }
 
+        /**
+         * Makes {@link MessageTemplate#process(Map)} render into a buffer reused by the calling thread,
+         * keeping buffers up to {@link MessageTemplate#DEFAULT_MAX_RETAINED_BUFFER_LENGTH} characters.
+         *
+         * @return The Builder instance for method chaining.
+         */
+        public Builder bufferPooling() {
+            return bufferPooling(DEFAULT_MAX_RETAINED_BUFFER_LENGTH);
+        }
+
+        /**
+         * Makes {@link MessageTemplate#process(Map)} render into a buffer reused by the calling thread.
+         * Renders whose output exceeds {@code maxRetainedLength} characters are processed without the pooled buffer.
+         * The buffer is shared by all pooled templates on the thread, so it is retained up to the largest limit among
+         * the templates rendered there.
+         *
+         * @param maxRetainedLength The largest buffer capacity, in characters, a thread keeps between renders.
+         * @return The Builder instance for method chaining.
+         */
+        public Builder bufferPooling(int maxRetainedLength) {
+            if (maxRetainedLength < 0) {
+                throw new IllegalArgumentException("maxRetainedLength must not be negative: " + maxRetainedLength);
+            }
+            this.bufferPooling = true;
+            this.maxRetainedBufferLength = maxRetainedLength;
+            return this;
+        }
+
         /**
          * Builds and returns a MessageTemplate instance based on the current state of the builder.
          *
@@ -209,7 +350,8 @@ public class MessageTemplate {
                 reservedPositions.put(entry.getKey(), positions);
             }
 
-            return new MessageTemplate(segmentList.toArray(new String[0]), reservedPositions);
+            return new MessageTemplate(segmentList.toArray(new String[0]), reservedPositions,
+                    bufferPooling, maxRetainedBufferLength);
         }
 
         private static class Placeholder {
@@ -0,0 +1,161 @@
+package io.github.penguin418;
+
+import java.util.*;
+
+/**
+ * Processed output of a {@link MessageTemplate} that remembers where each placeholder was written.
+ * Placeholders can be updated one keyword at a time, producing only the edits needed to bring the text up to date.
+ * <p>
+ * Unlike {@link MessageTemplate}, a RenderedMessage is mutable and not thread-safe. Calls to {@link #update} and
+ * {@link #getText} from multiple threads must be synchronized externally.
+ */
+public class RenderedMessage {
+    private final String[] valueArray;
+    private final int[] offsetArray;
+    private final Map<String, int[]> keywordToPositionArray;
+    private String text;
+
+    RenderedMessage(String[] valueArray, Map<String, int[]> keywordToPositionArray) {
+        this.valueArray = valueArray;
+        this.offsetArray = new int[valueArray.length];
+        this.keywordToPositionArray = keywordToPositionArray;
+        int length = 0;
+        for (int i = 0; i < valueArray.length; i++) {
+            offsetArray[i] = length;
+            length += valueArray[i].length();
+        }
+    }
+
+    /**
+     * Replaces every placeholder of the keyword with a new value.
+     * <p>
+     * The returned edits are ordered by offset, and each offset refers to the text after the preceding edits have
+     * been applied. Placeholders that already hold the value produce no edit. Only values and offsets are updated
+     * here; the text itself is rebuilt once by the next {@link #getText()}.
+     *
+     * @param keyword The reserved keyword of the placeholders to update.
+     * @param value   The new value for the placeholders.
+     * @return The edits applied to the text, or an empty list if nothing changed.
+     */
+    public List<Edit> update(String keyword, String value) {
+        int[] positions = keywordToPositionArray.get(keyword);
+        if (positions == null) {
+            return Collections.emptyList();
+        }
+        String replacement = String.valueOf(value);
+        List<Edit> edits = new ArrayList<>(positions.length);
+        int delta = 0;
+        int next = 0;
+        for (int i = positions[0]; i < valueArray.length; i++) {
+            offsetArray[i] += delta;
+            if (next < positions.length && positions[next] == i) {
+                next++;
+                String current = valueArray[i];
+                if (!current.equals(replacement)) {
+                    edits.add(new Edit(offsetArray[i], current.length(), replacement));
+                    valueArray[i] = replacement;
+                    delta += replacement.length() - current.length();
+                }
+            }
+            if (delta == 0 && next == positions.length) {
+                break;
+            }
+        }
+        if (edits.isEmpty()) {
+            return Collections.emptyList();
+        }
+        text = null;
+        return edits;
+    }
+
+    /**
+     * Retrieves the current text with all updates applied.
+     *
+     * @return The processed template as a String.
+     */
+    public String getText() {
+        if (text == null) {
+            text = String.join("", valueArray);
+        }
+        return text;
+    }
+
+    /**
+     * Retrieves the length of the current text.
+     *
+     * @return The number of characters in the current text.
+     */
+    public int length() {
+        int last = valueArray.length - 1;
+        return last < 0 ? 0 : offsetArray[last] + valueArray[last].length();
+    }
+
+    @Override
+    public String toString() {
+        return getText();
+    }
+
+    /**
+     * A single replacement of {@code length} characters at {@code offset} with {@code replacement}.
+     */
+    public static class Edit {
+        private final int offset;
+        private final int length;
+        private final String replacement;
+
+        Edit(int offset, int length, String replacement) {
+            this.offset = offset;
+            this.length = length;
+            this.replacement = replacement;
+        }
+
+        /**
+         * @return The offset of the replaced region in the text.
+         */
+        public int getOffset() {
+            return offset;
+        }
+
+        /**
+         * @return The number of replaced characters.
+         */
+        public int getLength() {
+            return length;
+        }
+
+        /**
+         * @return The text written in place of the replaced region.
+         */
+        public String getReplacement() {
+            return replacement;
+        }
+
+        /**
+         * Applies this edit to the given text.
+         *
+         * @param text The text to edit.
+         * @return The text with the edit applied.
+         */
+        public String applyTo(String text) {
+            return text.substring(0, offset) + replacement + text.substring(offset + length);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Edit)) return false;
+            Edit edit = (Edit) o;
+            return offset == edit.offset && length == edit.length && replacement.equals(edit.replacement);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(offset, length, replacement);
+        }
+
+        @Override
+        public String toString() {
+            return "Edit{offset=" + offset + ", length=" + length + ", replacement='" + replacement + "'}";
+        }
+    }
+}
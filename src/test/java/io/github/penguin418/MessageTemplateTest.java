@@ -1,10 +1,16 @@
 package io.github.penguin418;
 
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
 import java.util.*;
+import java.util.function.Supplier;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -111,6 +117,97 @@ class MessageTemplateTest {
             assertEquals("Lorem IPSUM sit IPSUM, adipiscing elit.", template.process(Map.of("ipsum", "IPSUM")));
         }
 
+        @Test
+        @DisplayName("Pooled buffer should not leak output between renders")
+        void bufferPoolingTest() {
+            MessageTemplate template = MessageTemplate.builder()
+                    .bufferPooling()
+                    .appendTemplate("Lorem ${ipsum:DEFAULT1} sit ${amet}, adipiscing elit.")
+                    .build();
+            assertEquals("Lorem IPSUM sit AMET, adipiscing elit.", template.process(Map.of("ipsum", "IPSUM", "amet", "AMET")));
+            assertEquals("Lorem DEFAULT1 sit null, adipiscing elit.", template.process(Map.of()));
+        }
+
+        @Test
+        @DisplayName("Render larger than the retained buffer limit should still be complete")
+        void bufferPoolingOverLimitTest() {
+            MessageTemplate template = MessageTemplate.builder()
+                    .bufferPooling(4)
+                    .appendTemplate("Lorem ${ipsum} sit ${amet}, adipiscing elit.")
+                    .build();
+            String longValue = "x".repeat(1024);
+            assertEquals("Lorem " + longValue + " sit AMET, adipiscing elit.", template.process(Map.of("ipsum", longValue, "amet", "AMET")));
+            assertEquals("Lorem IPSUM sit AMET, adipiscing elit.", template.process(Map.of("ipsum", "IPSUM", "amet", "AMET")));
+        }
+
+        @Test
+        @DisplayName("Values longer than their defaults should render correctly across pooled renders")
+        void bufferPoolingGrowthTest() {
+            MessageTemplate template = MessageTemplate.builder()
+                    .bufferPooling(32)
+                    .appendTemplate("Lorem ipsum ${dolor:sit} amet.")
+                    .build();
+            assertEquals("Lorem ipsum DOLOR DOLOR DOLOR amet.", template.process(Map.of("dolor", "DOLOR DOLOR DOLOR")));
+            assertEquals("Lorem ipsum DOLOR DOLOR DOLOR amet.", template.process(Map.of("dolor", "DOLOR DOLOR DOLOR")));
+            assertEquals("Lorem ipsum sit amet.", template.process(Map.of()));
+        }
+
+        @Test
+        @DisplayName("Output larger than the retained buffer limit should render correctly across pooled renders")
+        void bufferPoolingOutputOverLimitTest() {
+            MessageTemplate template = MessageTemplate.builder()
+                    .bufferPooling(16)
+                    .appendTemplate("Lorem ${ipsum:a} sit.")
+                    .build();
+            String longValue = "IPSUM ".repeat(10);
+            assertEquals("Lorem " + longValue + " sit.", template.process(Map.of("ipsum", longValue)));
+            assertEquals("Lorem " + longValue + " sit.", template.process(Map.of("ipsum", longValue)));
+            assertEquals("Lorem a sit.", template.process(Map.of()));
+            assertEquals("Lorem " + longValue + " sit.", template.process(Map.of("ipsum", longValue)));
+        }
+
+        @Test
+        @DisplayName("Pooled templates with different limits should render correctly on the same thread")
+        void bufferPoolingMixedLimitTest() {
+            MessageTemplate wide = MessageTemplate.builder().bufferPooling(1024).appendTemplate("Lorem ${ipsum} sit.").build();
+            MessageTemplate narrow = MessageTemplate.builder().bufferPooling(16).appendTemplate("<${ipsum}>").build();
+            String longValue = "IPSUM ".repeat(100);
+            for (int i = 0; i < 3; i++) {
+                assertEquals("Lorem " + longValue + " sit.", wide.process(Map.of("ipsum", longValue)));
+                assertEquals("<IPSUM>", narrow.process(Map.of("ipsum", "IPSUM")));
+            }
+        }
+
+        @Test
+        @DisplayName("Nested pooled render on the same thread should not share the buffer")
+        void bufferPoolingNestedTest() {
+            MessageTemplate inner = MessageTemplate.builder().bufferPooling().appendTemplate("<${ipsum}>").build();
+            MessageTemplate outer = MessageTemplate.builder().bufferPooling().appendTemplate("Lorem ${ipsum} sit ${amet}.").build();
+            Map<String, String> replacements = new HashMap<>() {
+                @Override
+                public String getOrDefault(Object key, String defaultValue) {
+                    return "ipsum".equals(key) ? inner.process(Map.of("ipsum", "IPSUM")) : super.getOrDefault(key, defaultValue);
+                }
+            };
+            replacements.put("amet", "AMET");
+            assertEquals("Lorem <IPSUM> sit AMET.", outer.process(replacements));
+        }
+
+        @Test
+        @DisplayName("Negative retained buffer limit should be rejected")
+        void bufferPoolingNegativeLimitTest() {
+            assertThrows(IllegalArgumentException.class, () -> MessageTemplate.builder().bufferPooling(-1));
+        }
+
+        @Test
+        @DisplayName("Processing into an Appendable should match process()")
+        void processAppendableTest() throws IOException {
+            MessageTemplate template = MessageTemplate.builder().appendTemplate("Lorem ${ipsum:DEFAULT1} sit ${amet}, adipiscing elit.").build();
+            StringBuilder out = new StringBuilder("> ");
+            template.process(Map.of("amet", "AMET"), out);
+            assertEquals("> Lorem DEFAULT1 sit AMET, adipiscing elit.", out.toString());
+        }
+
         @Test
         @DisplayName("Pattern should capture placeHolder inside brace start with $")
         public void patternTest(){
@@ -474,4 +571,202 @@ class MessageTemplateTest {
         }
     }
 
+    /**
+     * Allocation and latency budgets, run by the {@code regressionTest} Gradle task.
+     * Budgets are passed as system properties and fall back to the defaults below.
+     */
+    @Nested
+    @Tag("regression")
+    public class RegressionTest {
+        private static final int WARM_UP_ITERATIONS = 50_000;
+        private static final int ITERATIONS = 10_000;
+        private static final int LATENCY_ROUNDS = 5;
+
+        // {bytes per call, p99 nanoseconds} measured on JDK 17 with the regressionTest JVM options on a single-CPU
+        // Linux box: about 25% headroom over allocation and 3x over the slowest of five runs for latency
+        private static final Map<String, long[]> DEFAULT_BUDGETS = Map.ofEntries(
+                Map.entry("process.short", new long[]{216L, 8_500L}),
+                Map.entry("process.mid", new long[]{272L, 8_500L}),
+                Map.entry("process.long", new long[]{392L, 2_500L}),
+                Map.entry("process.longer", new long[]{464L, 2_000L}),
+                Map.entry("process.grown", new long[]{7_104L, 6_000L}),
+                Map.entry("process.overCap", new long[]{15_192L, 9_500L}),
+                Map.entry("pooledProcess.short", new long[]{112L, 3_000L}),
+                Map.entry("pooledProcess.mid", new long[]{136L, 7_000L}),
+                Map.entry("pooledProcess.long", new long[]{192L, 10_000L}),
+                Map.entry("pooledProcess.longer", new long[]{224L, 12_000L}),
+                Map.entry("pooledProcess.grown", new long[]{6_984L, 9_500L}),
+                Map.entry("pooledProcess.overCap", new long[]{15_192L, 10_000L}),
+                Map.entry("appendableProcess.short", new long[]{8L, 4_000L}),
+                Map.entry("appendableProcess.mid", new long[]{8L, 3_500L}),
+                Map.entry("appendableProcess.long", new long[]{8L, 9_000L}),
+                Map.entry("appendableProcess.longer", new long[]{8L, 2_000L}),
+                Map.entry("appendableProcess.grown", new long[]{8L, 1_000L}),
+                Map.entry("appendableProcess.overCap", new long[]{8L, 2_000L}),
+                Map.entry("build.short", new long[]{592L, 6_000L}),
+                Map.entry("build.mid", new long[]{776L, 5_500L}),
+                Map.entry("build.long", new long[]{976L, 2_000L}),
+                Map.entry("build.longer", new long[]{1_104L, 2_500L}),
+                Map.entry("build.grown", new long[]{560L, 1_500L}),
+                Map.entry("build.overCap", new long[]{464L, 1_000L}),
+                Map.entry("getTemplate.short", new long[]{1_480L, 11_000L}),
+                Map.entry("getTemplate.mid", new long[]{2_344L, 6_500L}),
+                Map.entry("getTemplate.long", new long[]{3_632L, 10_500L}),
+                Map.entry("getTemplate.longer", new long[]{4_296L, 12_000L}),
+                Map.entry("getTemplate.grown", new long[]{26_776L, 527_000L}),
+                Map.entry("getTemplate.overCap", new long[]{1_400L, 4_000L})
+        );
+
+        private final com.sun.management.ThreadMXBean threadMXBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+        @BeforeEach
+        void requireAllocationAccounting() {
+            assertTrue(threadMXBean.isThreadAllocatedMemorySupported(), "thread allocation accounting is not supported");
+            assertTrue(threadMXBean.isThreadAllocatedMemoryEnabled(), "thread allocation accounting is not enabled");
+        }
+
+        @Test
+        @DisplayName("process() should stay within its allocation and latency budget")
+        public void processBudget() {
+            for (Corpus corpus : corpus()) {
+                MessageTemplate template = corpus.builder.build();
+                checkBudget("process", corpus.name, () -> template.process(corpus.replacements));
+            }
+        }
+
+        @Test
+        @DisplayName("Pooled process() should stay within its allocation and latency budget")
+        public void pooledProcessBudget() {
+            for (Corpus corpus : corpus()) {
+                MessageTemplate template = corpus.builder.bufferPooling().build();
+                checkBudget("pooledProcess", corpus.name, () -> template.process(corpus.replacements));
+            }
+        }
+
+        @Test
+        @DisplayName("process() into a reused Appendable should not allocate")
+        public void appendableProcessBudget() {
+            for (Corpus corpus : corpus()) {
+                MessageTemplate template = corpus.builder.build();
+                StringBuilder out = new StringBuilder();
+                checkBudget("appendableProcess", corpus.name, () -> {
+                    out.setLength(0);
+                    try {
+                        template.process(corpus.replacements, out);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    return out;
+                });
+            }
+        }
+
+        @Test
+        @DisplayName("build() should stay within its allocation and latency budget")
+        public void buildBudget() {
+            for (Corpus corpus : corpus()) {
+                checkBudget("build", corpus.name, corpus.builder::build);
+            }
+        }
+
+        @Test
+        @DisplayName("getTemplate() should stay within its allocation and latency budget")
+        public void getTemplateBudget() {
+            for (Corpus corpus : corpus()) {
+                MessageTemplate template = corpus.builder.build();
+                checkBudget("getTemplate", corpus.name, template::getTemplate);
+            }
+        }
+
+        private void checkBudget(String operation, String corpus, Supplier<Object> task) {
+            String budgetKey = operation + "." + corpus;
+            long bytesBudget = Long.getLong("messageTemplate.budget." + budgetKey + ".bytes", DEFAULT_BUDGETS.get(budgetKey)[0]);
+            long p99Budget = Long.getLong("messageTemplate.budget." + budgetKey + ".p99Nanos", DEFAULT_BUDGETS.get(budgetKey)[1]);
+
+            Object sink = null;
+            for (int i = 0; i < WARM_UP_ITERATIONS; i++) {
+                sink = task.get();
+            }
+
+            long threadId = Thread.currentThread().getId();
+            long allocatedBefore = threadMXBean.getThreadAllocatedBytes(threadId);
+            for (int i = 0; i < ITERATIONS; i++) {
+                sink = task.get();
+            }
+            long allocatedAfter = threadMXBean.getThreadAllocatedBytes(threadId);
+            // -1 means allocation accounting is off, which would make every allocation budget pass
+            assertTrue(allocatedBefore >= 0 && allocatedAfter >= 0,
+                    "thread allocation accounting returned " + allocatedBefore + " and " + allocatedAfter);
+            long bytesPerCall = (allocatedAfter - allocatedBefore) / ITERATIONS;
+
+            // best p99 over several rounds, so a JIT compilation or GC landing in one round is not a regression
+            long p99 = Long.MAX_VALUE;
+            long[] latencies = new long[ITERATIONS];
+            for (int round = 0; round < LATENCY_ROUNDS; round++) {
+                for (int i = 0; i < ITERATIONS; i++) {
+                    long startTime = System.nanoTime();
+                    sink = task.get();
+                    latencies[i] = System.nanoTime() - startTime;
+                }
+                Arrays.sort(latencies);
+                p99 = Math.min(p99, latencies[(int) Math.ceil(ITERATIONS * 0.99) - 1]);
+            }
+
+            System.out.println(operation + " [" + corpus + "]: " + bytesPerCall + " bytes/call, p99 " + p99 + " ns");
+            assertNotNull(sink);
+            assertTrue(bytesPerCall <= bytesBudget,
+                    operation + " [" + corpus + "] allocated " + bytesPerCall + " bytes/call, budget is " + bytesBudget);
+            assertTrue(p99 <= p99Budget,
+                    operation + " [" + corpus + "] p99 latency " + p99 + " ns, budget is " + p99Budget);
+        }
+
+        private List<Corpus> corpus() {
+            return List.of(
+                    new Corpus("short", new MessageTemplate.Builder()
+                            .append("Lorem ipsum ")
+                            .reserve("dolor", "sit")
+                            .append(" amet, ")
+                            .reserve("consectetur", "adipiscing")
+                            .append(" elit."),
+                            Map.of("dolor", "DOLOR", "consectetur", "CONSECTETUR")),
+                    new Corpus("mid", new MessageTemplate.Builder()
+                            .appendTemplate("Lorem ipsum ${dolor:sit} amet, ${consectetur:adipiscing} elit, ${sed} do ${eiusmod} tempor."),
+                            Map.of("dolor", "DOLOR", "consectetur", "CONSECTETUR", "sed", "SED", "eiusmod", "EIUSMOD")),
+                    new Corpus("long", new MessageTemplate.Builder()
+                            .appendTemplate("Lorem ipsum ${dolor:sit} amet, ${consectetur:adipiscing} elit, ${sed} do ${eiusmod} tempor ")
+                            .appendTemplate("${incididunt} ut ${labore} et ${dolore} magna aliqua."),
+                            Map.of("dolor", "DOLOR", "consectetur", "CONSECTETUR", "sed", "SED", "eiusmod", "EIUSMOD",
+                                    "incididunt", "INCIDIDUNT", "labore", "LABORE", "dolore", "DOLORE")),
+                    new Corpus("longer", new MessageTemplate.Builder()
+                            .appendTemplate("Lorem ipsum ${dolor:sit} amet, ${consectetur:adipiscing} elit, ${sed} do ${eiusmod} tempor ")
+                            .appendTemplate("${incididunt} ut ${labore} et ${dolore} et ${dolore1} et ${dolore2} magna aliqua."),
+                            Map.of("dolor", "DOLOR", "consectetur", "CONSECTETUR", "sed", "SED", "eiusmod", "EIUSMOD",
+                                    "incididunt", "INCIDIDUNT", "labore", "LABORE", "dolore", "DOLORE",
+                                    "dolore1", "DOLORE1", "dolore2", "DOLORE2")),
+                    // static text between half the retained buffer limit and the limit, values far longer than defaults
+                    new Corpus("grown", new MessageTemplate.Builder()
+                            .append("Lorem ipsum dolor sit amet. ".repeat(180))
+                            .appendTemplate("${consectetur:a} elit, ${sed:b} do ${eiusmod:c} tempor."),
+                            Map.of("consectetur", "CONSECTETUR ".repeat(20), "sed", "SED ".repeat(20), "eiusmod", "EIUSMOD ".repeat(20))),
+                    // values push the output past the retained buffer limit
+                    new Corpus("overCap", new MessageTemplate.Builder()
+                            .appendTemplate("Lorem ipsum ${dolor:sit} amet, ${consectetur:adipiscing} elit."),
+                            Map.of("dolor", "DOLOR ".repeat(1000), "consectetur", "CONSECTETUR ".repeat(500)))
+            );
+        }
+
+        private static class Corpus {
+            final String name;
+            final MessageTemplate.Builder builder;
+            final Map<String, String> replacements;
+
+            private Corpus(String name, MessageTemplate.Builder builder, Map<String, String> replacements) {
+                this.name = name;
+                this.builder = builder;
+                this.replacements = replacements;
+            }
+        }
+    }
+
 }
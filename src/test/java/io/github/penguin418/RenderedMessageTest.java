@@ -0,0 +1,88 @@
+package io.github.penguin418;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RenderedMessageTest {
+
+    @Nested
+    public class FunctionalTest {
+        @Test
+        @DisplayName("Rendered text should match process()")
+        void renderTest() {
+            MessageTemplate template = MessageTemplate.builder().appendTemplate("Lorem ${ipsum:DEFAULT1} sit ${amet}, adipiscing elit.").build();
+            RenderedMessage message = template.render(Map.of("amet", "AMET"));
+            assertEquals(template.process(Map.of("amet", "AMET")), message.getText());
+            assertEquals(message.getText().length(), message.length());
+        }
+
+        @Test
+        @DisplayName("Update should match processing the template with the new value")
+        void updateTest() {
+            MessageTemplate template = MessageTemplate.builder().appendTemplate("Lorem ${ipsum} sit ${amet}, ${ipsum} elit.").build();
+            RenderedMessage message = template.render(Map.of("ipsum", "IPSUM", "amet", "AMET"));
+
+            message.update("amet", "A");
+            assertEquals("Lorem IPSUM sit A, IPSUM elit.", message.getText());
+            message.update("ipsum", "LONGER IPSUM");
+            assertEquals(template.process(Map.of("ipsum", "LONGER IPSUM", "amet", "A")), message.getText());
+        }
+
+        @Test
+        @DisplayName("Edits should reproduce the new text when applied in order")
+        void updateEditsTest() {
+            MessageTemplate template = MessageTemplate.builder().appendTemplate("Lorem ${ipsum} sit ${amet}, ${ipsum} elit.").build();
+            RenderedMessage message = template.render(Map.of("ipsum", "IPSUM", "amet", "AMET"));
+            String text = message.getText();
+
+            List<RenderedMessage.Edit> edits = message.update("ipsum", "I");
+            assertEquals(List.of(new RenderedMessage.Edit(6, 5, "I"), new RenderedMessage.Edit(18, 5, "I")), edits);
+            for (RenderedMessage.Edit edit : edits) {
+                text = edit.applyTo(text);
+            }
+            assertEquals(message.getText(), text);
+        }
+
+        @Test
+        @DisplayName("Unchanged value or unknown keyword should produce no edit")
+        void updateNoEditTest() {
+            MessageTemplate template = MessageTemplate.builder().appendTemplate("Lorem ${ipsum:DEFAULT1} sit ${ipsum:DEFAULT2}.").build();
+            RenderedMessage message = template.render(Map.of());
+
+            assertTrue(message.update("amet", "AMET").isEmpty());
+            assertEquals(List.of(new RenderedMessage.Edit(19, 8, "DEFAULT1")), message.update("ipsum", "DEFAULT1"));
+            assertTrue(message.update("ipsum", "DEFAULT1").isEmpty());
+            assertEquals("Lorem DEFAULT1 sit DEFAULT1.", message.getText());
+        }
+
+        @Test
+        @DisplayName("Length should follow updates without building the text")
+        void lengthTest() {
+            MessageTemplate template = MessageTemplate.builder().appendTemplate("Lorem ${ipsum} sit ${amet}, ${ipsum} elit.").build();
+            RenderedMessage message = template.render(Map.of("ipsum", "IPSUM", "amet", "AMET"));
+
+            message.update("ipsum", "I");
+            message.update("amet", "LONGER AMET");
+            assertEquals("Lorem I sit LONGER AMET, I elit.".length(), message.length());
+            assertEquals("Lorem I sit LONGER AMET, I elit.", message.getText());
+            assertEquals(0, MessageTemplate.builder().build().render(Map.of()).length());
+        }
+
+        @Test
+        @DisplayName("Missing or null value should be rendered as null like process()")
+        void updateNullTest() {
+            MessageTemplate template = MessageTemplate.builder().appendTemplate("Lorem ${ipsum} sit.").build();
+            RenderedMessage message = template.render(Map.of());
+            assertEquals("Lorem null sit.", message.getText());
+
+            message.update("ipsum", "IPSUM");
+            message.update("ipsum", null);
+            assertEquals("Lorem null sit.", message.getText());
+        }
+    }
+}